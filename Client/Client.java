@@ -14,6 +14,7 @@ public class Client {
             socket = new Socket(serverAddress, port);
             in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
             out = new PrintWriter(socket.getOutputStream(), true);
+            out.println("HELLO"); // start a new server session
 
             // GUI setup
             JFrame frame = new JFrame("🛍 Online Cloth Store Client");
@@ -8,13 +8,22 @@ import java.util.*;
 import java.util.List;
 
 public class ClientGUI extends JFrame {
-    private Socket socket;
-    private BufferedReader in;
-    private PrintWriter out;
+    // replaced on reconnect by the listener thread
+    private volatile Socket socket;
+    private volatile BufferedReader in;
+    private volatile PrintWriter out;
+
+    // server session, used to RESUME the cart after a dropped connection
+    private volatile String sessionToken;
+    private volatile long catalogVersion = -1;
+    private final Random random = new Random();
+    // order ids whose result was already shown; the server replays un-ACKed ones on RESUME
+    private final Set<String> settledOrders = new HashSet<>();
 
     private JPanel productsPanel;
     private DefaultListModel<String> cartModel = new DefaultListModel<>();
-    private Map<String,Integer> cartMap = new HashMap<>();
+    private Map<String,Integer> cartMap = new LinkedHashMap<>(); // insertion order == cartModel row order
+    private Map<String,Integer> cartRows = new HashMap<>(); // key -> row in cartModel
     private Map<String,ProductInfo> products = new LinkedHashMap<>(); // preserve order
 
     private JLabel statusLabel;
@@ -24,9 +33,9 @@ public class ClientGUI extends JFrame {
     // product info container (local copy)
     static class ProductInfo {
         String name, desc, imgPath;
-        double price;
+        long price; // paisa
         int stock;
-        ProductInfo(String n,double p,int s,String d,String img){ name=n;price=p;stock=s;desc=d;imgPath=img;}
+        ProductInfo(String n,long p,int s,String d,String img){ name=n;price=p;stock=s;desc=d;imgPath=img;}
     }
 
     public ClientGUI() {
@@ -68,7 +77,7 @@ public class ClientGUI extends JFrame {
         side.add(cartScroll, BorderLayout.CENTER);
 
         JPanel bottom = new JPanel(new GridLayout(3,1,5,5));
-        totalLabel = new JLabel("Total: Rs 0.0");
+        totalLabel = new JLabel("Total: Rs " + money(0));
         JButton checkoutBtn = new JButton("Checkout");
         JButton clearBtn = new JButton("Clear Cart");
 
@@ -97,33 +106,7 @@ public class ClientGUI extends JFrame {
 
     private void connectToServer() {
         try {
-            socket = new Socket("127.0.0.1", 5000);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            out = new PrintWriter(socket.getOutputStream(), true);
-
-            // read initial product list sent by server
-            String line;
-            while ((line = in.readLine()) != null) {
-                if (line.startsWith("PRODUCT|")) {
-                    // format: PRODUCT|name|price|stock|desc
-                    String[] parts = line.split("\\|",5);
-                    if (parts.length>=5) {
-                        String name = parts[1];
-                        double price = Double.parseDouble(parts[2]);
-                        int stock = Integer.parseInt(parts[3]);
-                        String desc = parts[4];
-                        // image path expected in client/images/<lowercase>.jpg
-                        String img = "images/" + name.toLowerCase() + ".jpg";
-                        ProductInfo pi = new ProductInfo(name,price,stock,desc,img);
-                        products.put(name.toLowerCase(), pi);
-                    }
-                } else if (line.equals("END")) {
-                    break;
-                }
-            }
-            // build UI cards
-            SwingUtilities.invokeLater(this::populateProductsUI);
-
+            handshake();
             // start listener thread to receive async messages (payment notifications)
             new Thread(this::listenServer).start();
             statusLabel.setText("🟢 Connected to server");
@@ -133,6 +116,88 @@ public class ClientGUI extends JFrame {
         }
     }
 
+    // open the socket, send HELLO or RESUME and read the catalog up to END
+    private void handshake() throws IOException {
+        Socket s = new Socket("127.0.0.1", 5000);
+        in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+        out = new PrintWriter(s.getOutputStream(), true);
+        socket = s;
+        out.println(sessionToken == null ? "HELLO" : "RESUME:" + sessionToken + ":" + catalogVersion);
+
+        Map<String,ProductInfo> fresh = null; // stays null when our catalog is still current
+        boolean resumed = false;
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith("SESSION|")) {
+                // format: SESSION|token|NEW or RESUMED
+                String[] parts = line.split("\\|");
+                sessionToken = parts[1];
+                resumed = parts.length > 2 && parts[2].equals("RESUMED");
+            } else if (line.startsWith("CATALOG|")) {
+                // format: CATALOG|version[|CURRENT]
+                String[] parts = line.split("\\|");
+                catalogVersion = Long.parseLong(parts[1]);
+                if (parts.length < 3) fresh = new LinkedHashMap<>();
+            } else if (line.startsWith("PRODUCT|")) {
+                // format: PRODUCT|name|price|stock|desc
+                String[] parts = line.split("\\|",5);
+                if (parts.length>=5) {
+                    String name = parts[1];
+                    long price = new java.math.BigDecimal(parts[2]).movePointRight(2).longValueExact();
+                    int stock = Integer.parseInt(parts[3]);
+                    String desc = parts[4];
+                    // image path expected in client/images/<lowercase>.jpg
+                    String img = "images/" + name.toLowerCase() + ".jpg";
+                    if (fresh == null) fresh = new LinkedHashMap<>();
+                    fresh.put(name.toLowerCase(), new ProductInfo(name,price,stock,desc,img));
+                }
+            } else if (line.equals("END")) {
+                break;
+            }
+        }
+        if (line == null) throw new IOException("Connection closed during handshake");
+
+        final Map<String,ProductInfo> catalog = fresh;
+        final boolean lostCart = !resumed;
+        SwingUtilities.invokeLater(() -> {
+            if (catalog != null) {
+                // build UI cards
+                products = catalog;
+                populateProductsUI();
+            }
+            // session expired on the server: push our local cart into the new one
+            // one batch command, answered by a single RESTORE| line instead of an OK popup per item
+            if (lostCart && !cartMap.isEmpty()) {
+                StringBuilder sb = new StringBuilder("RESTORE:");
+                for (Map.Entry<String,Integer> e : cartMap.entrySet()) {
+                    if (sb.length() > 8) sb.append(',');
+                    sb.append(e.getKey()).append(':').append(e.getValue());
+                }
+                out.println(sb);
+            }
+        });
+    }
+
+    // retry with capped exponential backoff; the random jitter keeps many
+    // clients dropped by the same blip from reconnecting in lockstep
+    private boolean reconnect() {
+        long delay = 250;
+        while (true) {
+            try {
+                Thread.sleep(delay / 2 + random.nextInt((int) (delay / 2) + 1));
+            } catch (InterruptedException e) {
+                return false;
+            }
+            try {
+                handshake();
+                SwingUtilities.invokeLater(() -> statusLabel.setText("🟢 Reconnected to server"));
+                return true;
+            } catch (IOException e) {
+                delay = Math.min(delay * 2, 30_000);
+            }
+        }
+    }
+
     private void populateProductsUI() {
         productsPanel.removeAll();
         for (ProductInfo p : products.values()) {
@@ -163,7 +228,7 @@ public class ClientGUI extends JFrame {
         info.setBackground(Color.WHITE);
         JLabel name = new JLabel(p.name);
         name.setFont(new Font("Segoe UI", Font.BOLD, 16));
-        JLabel price = new JLabel("Rs " + p.price);
+        JLabel price = new JLabel("Rs " + money(p.price));
         price.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         JLabel stock = new JLabel("Stock: " + p.stock);
         stock.setFont(new Font("Segoe UI", Font.PLAIN, 12));
@@ -205,30 +270,58 @@ public class ClientGUI extends JFrame {
 
     private void addToCart(String name, int qty) {
         // optimistic local update
-        cartMap.put(name, cartMap.getOrDefault(name,0) + qty);
-        refreshCartUI();
-        // notify server (ADD:name:qty)
+        ProductInfo p = products.get(name);
+        if (p == null) return;
+        Integer before = cartMap.get(name);
+        int now = (before == null ? 0 : before) + qty;
+        cartMap.put(name, now);
+        String row = cartRow(p, now);
+        Integer index = cartRows.get(name);
+        if (index == null) {
+            cartRows.put(name, cartModel.size());
+            cartModel.addElement(row);
+        } else {
+            // only the changed row is rewritten
+            cartModel.set(index, row);
+        }
+        // notify server (ADD:name:qty), then ask for the promotion-adjusted total
         out.println("ADD:" + name + ":" + qty);
+        out.println("VIEW_CART");
         // read server immediate response asynchronously in listenServer thread
     }
 
+    // full rebuild, only needed when the whole cart is replaced or cleared
     private void refreshCartUI() {
         cartModel.clear();
-        double total = 0;
+        cartRows.clear();
         for (Map.Entry<String,Integer> e : cartMap.entrySet()) {
             ProductInfo p = products.get(e.getKey());
             if (p != null) {
-                String line = p.name + " x" + e.getValue() + "  Rs " + (p.price * e.getValue());
-                cartModel.addElement(line);
-                total += p.price * e.getValue();
+                cartRows.put(e.getKey(), cartModel.size());
+                cartModel.addElement(cartRow(p, e.getValue()));
             }
         }
-        totalLabel.setText("Total: Rs " + total);
+        // the total comes from the server, which applies promotions
+        if (cartMap.isEmpty()) {
+            totalLabel.setText("Total: Rs " + money(0));
+        } else {
+            out.println("VIEW_CART");
+        }
+    }
+
+    private static String cartRow(ProductInfo p, int qty) {
+        return p.name + " x" + qty + "  Rs " + money(p.price * qty);
+    }
+
+    // paisa -> "2200.00"
+    private static String money(long paisa) {
+        return java.math.BigDecimal.valueOf(paisa, 2).toPlainString();
     }
 
     private void clearCart() {
         cartMap.clear();
         refreshCartUI();
+        out.println("CLEAR"); // the server prices its own copy of the cart, so clear it there too
     }
 
     private void doCheckout() {
@@ -243,16 +336,19 @@ public class ClientGUI extends JFrame {
     }
 
     private void listenServer() {
-        try {
-            String line;
-            while ((line = in.readLine()) != null) {
-                final String msg = line;
-                System.out.println("SERVER -> " + msg);
-                SwingUtilities.invokeLater(() -> handleServerMessage(msg));
+        do {
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    final String msg = line;
+                    System.out.println("SERVER -> " + msg);
+                    SwingUtilities.invokeLater(() -> handleServerMessage(msg));
+                }
+            } catch (IOException ignored) {
             }
-        } catch (IOException e) {
-            SwingUtilities.invokeLater(() -> statusLabel.setText("🔴 Disconnected from server"));
-        }
+            try { socket.close(); } catch (IOException ignored) {}
+            SwingUtilities.invokeLater(() -> statusLabel.setText("🔴 Disconnected from server, reconnecting..."));
+        } while (reconnect());
     }
 
     private void handleServerMessage(String msg) {
@@ -266,22 +362,33 @@ public class ClientGUI extends JFrame {
             JOptionPane.showMessageDialog(this, "Payment processing (order " + id + "). Please wait...");
         } else if (msg.startsWith("PAYMENT|SUCCESS|")) {
             String id = msg.split("\\|")[2];
+            out.println("ACK:" + id); // server stops replaying it on RESUME
+            if (!settledOrders.add(id)) return; // replayed after a reconnect, already handled
             JOptionPane.showMessageDialog(this, "Payment SUCCESS! Order ID: " + id);
-            // commit cart -> clear local cart and refresh (server has already decremented)
-            cartMap.clear();
-            refreshCartUI();
+            // the server follows up with RESTORE| holding whatever was added during payment
             // request updated products? For simplicity, reduce local stock display
             refreshStockFromServer(); // optional attempt to keep UI in sync
         } else if (msg.startsWith("PAYMENT|FAILED|")) {
             String id = msg.split("\\|")[2];
+            out.println("ACK:" + id); // server stops replaying it on RESUME
+            if (!settledOrders.add(id)) return; // replayed after a reconnect, already handled
             JOptionPane.showMessageDialog(this, "Payment FAILED for order " + id, "Payment Failed", JOptionPane.ERROR_MESSAGE);
             // refresh product UI as server restored stock
             refreshStockFromServer();
+        } else if (msg.startsWith("RESTORE|")) {
+            // format: RESTORE|key:qty,key:qty -- the server's cart (possibly empty) after a resume or a paid order
+            cartMap.clear();
+            for (String item : msg.substring(8).split(",")) {
+                String[] kv = item.split(":");
+                if (kv.length == 2) cartMap.put(kv[0], Integer.parseInt(kv[1]));
+            }
+            refreshCartUI();
         } else if (msg.startsWith("PRODUCT|")) {
             // ignore (we already loaded at start)
         } else if (msg.startsWith("CART|")) {
-            // could display server cart view if processed
-            JOptionPane.showMessageDialog(this, "Server cart info: " + msg.substring(5));
+            // format: CART|name xN | ... | TOTAL:amount  (or CART|EMPTY)
+            int at = msg.lastIndexOf("TOTAL:");
+            totalLabel.setText("Total: Rs " + (at < 0 ? money(0) : msg.substring(at + 6)));
         } else if (msg.startsWith("INFO|")) {
             // small info messages
             statusLabel.setText(msg.substring(5));
@@ -0,0 +1,129 @@
+// Cart.java
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+// Per-client cart that keeps its totals up to date as lines change.
+// All money is held in integer minor units (paisa), never as double.
+public class Cart {
+
+    // one cart line: product key -> qty at a fixed unit price
+    static class Line {
+        final String key;
+        final String name;
+        final long unitMinor;
+        int qty;
+        Line(String k, String n, long u) { key = k; name = n; unitMinor = u; }
+        long subtotal() { return unitMinor * qty; }
+    }
+
+    private final Promotions promotions;
+    private final Map<String, Line> lines = new LinkedHashMap<>();
+    // discount currently granted by each promotion group, so only the changed group touches the running total
+    private final Map<Integer, Long> applied = new HashMap<>();
+    private long subtotalMinor;
+    private long discountMinor;
+    // cached CART| reply, rebuilt only after a mutation
+    private String summary;
+
+    public Cart(Promotions promotions) {
+        this.promotions = promotions;
+    }
+
+    public synchronized void add(String key, String name, long unitMinor, int qty) {
+        Line l = lines.get(key);
+        if (l == null) {
+            l = new Line(key, name, unitMinor);
+            lines.put(key, l);
+        }
+        l.qty += qty;
+        subtotalMinor += unitMinor * qty;
+        reprice(key);
+        summary = null;
+    }
+
+    // take an ordered key -> qty off the cart (after a successful payment), keeping anything added since
+    public synchronized void remove(Map<String, Integer> order) {
+        for (Map.Entry<String, Integer> e : order.entrySet()) {
+            Line l = lines.get(e.getKey());
+            if (l == null) continue;
+            int take = Math.min(l.qty, e.getValue());
+            l.qty -= take;
+            subtotalMinor -= l.unitMinor * take;
+            if (l.qty == 0) lines.remove(l.key);
+            reprice(l.key);
+        }
+        summary = null;
+    }
+
+    public synchronized void clear() {
+        lines.clear();
+        applied.clear();
+        subtotalMinor = 0;
+        discountMinor = 0;
+        summary = null;
+    }
+
+    public synchronized boolean isEmpty() { return lines.isEmpty(); }
+
+    public synchronized int qty(String key) {
+        Line l = lines.get(key);
+        return l == null ? 0 : l.qty;
+    }
+
+    public synchronized long unitPrice(String key) {
+        Line l = lines.get(key);
+        return l == null ? 0 : l.unitMinor;
+    }
+
+    public synchronized List<String> keys() { return new ArrayList<>(lines.keySet()); }
+
+    // key -> qty copy, safe to hand to another thread
+    public synchronized Map<String, Integer> snapshot() {
+        Map<String, Integer> m = new LinkedHashMap<>();
+        for (Line l : lines.values()) m.put(l.key, l.qty);
+        return m;
+    }
+
+    public synchronized long subtotalMinor() { return subtotalMinor; }
+
+    public synchronized long discountMinor() { return discountMinor; }
+
+    public synchronized long totalMinor() { return Math.max(0, subtotalMinor - discountMinor); }
+
+    // protocol form: CART|name xN | ... | PROMO:label -amount | TOTAL:amount
+    public synchronized String summary() {
+        if (lines.isEmpty()) return "CART|EMPTY";
+        if (summary == null) {
+            StringBuilder sb = new StringBuilder("CART|");
+            for (Line l : lines.values()) {
+                sb.append(l.name).append(" x").append(l.qty).append(" | ");
+            }
+            for (Map.Entry<Integer, Long> e : applied.entrySet()) {
+                sb.append("PROMO:").append(promotions.describe(e.getKey(), this))
+                  .append(" -").append(format(e.getValue())).append(" | ");
+            }
+            summary = sb.append("TOTAL:").append(format(totalMinor())).toString();
+        }
+        return summary;
+    }
+
+    // re-evaluate only the promotion group this product belongs to
+    private void reprice(String key) {
+        int g = promotions.groupFor(key);
+        if (g < 0) return;
+        long now = Math.max(0, promotions.evaluate(g, this));
+        Long before = now > 0 ? applied.put(g, now) : applied.remove(g);
+        discountMinor += now - (before == null ? 0 : before);
+    }
+
+    // "2200.00" -> 220000 (extra decimals are rounded half-up)
+    public static long toMinor(String amount) {
+        return new BigDecimal(amount.trim()).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    // 220000 -> "2200.00"
+    public static String format(long minor) {
+        return BigDecimal.valueOf(minor, 2).toPlainString();
+    }
+}
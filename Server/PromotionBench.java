@@ -0,0 +1,65 @@
+// PromotionBench.java
+import java.util.*;
+
+// Load tool: compiles thousands of promotion rules and times Cart.add, which
+// re-evaluates only the resolved deal or bundle of the product being added.
+// Usage: java PromotionBench [rules] [products]
+public class PromotionBench {
+
+    public static void main(String[] args) {
+        int ruleCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int productCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        Random rnd = new Random(42);
+
+        String[] keys = new String[productCount];
+        Map<String, Long> prices = new HashMap<>();
+        for (int i = 0; i < productCount; i++) {
+            keys[i] = "p" + i;
+            prices.put(keys[i], 1000_00L);
+        }
+
+        // rules spread over the catalogue
+        List<Promotions.Rule> spread = new ArrayList<>();
+        for (int i = 0; i < ruleCount; i++) spread.add(randomRule(rnd, keys, keys[rnd.nextInt(productCount)]));
+        // worst case: every rule mentions the same product
+        List<Promotions.Rule> hot = new ArrayList<>();
+        for (int i = 0; i < ruleCount; i++) hot.add(randomRule(rnd, keys, keys[0]));
+
+        run("spread", Promotions.compile(spread, prices), keys, rnd, false);
+        run("spread", Promotions.compile(spread, prices), keys, rnd, false); // second pass is the warm number
+        run("hot", Promotions.compile(hot, prices), keys, rnd, true);
+        run("hot", Promotions.compile(hot, prices), keys, rnd, true);
+    }
+
+    static Promotions.Rule randomRule(Random rnd, String[] keys, String key) {
+        switch (rnd.nextInt(3)) {
+            case 0:
+                return new Promotions.PercentOff(key, 1 + rnd.nextInt(50));
+            case 1:
+                return new Promotions.BuyXGetY(key, 1 + rnd.nextInt(3), 1);
+            default:
+                String other = keys[rnd.nextInt(keys.length)];
+                while (other.equals(key)) other = keys[rnd.nextInt(keys.length)];
+                return new Promotions.Bundle(new String[] { key, other }, 100_00 + rnd.nextInt(1000_00));
+        }
+    }
+
+    // time 200k adds, starting a new cart every 20 lines
+    static void run(String label, Promotions promos, String[] keys, Random rnd, boolean hotOnly) {
+        int ops = 200_000;
+        long[] ns = new long[ops];
+        Cart cart = new Cart(promos);
+        for (int i = 0; i < ops; i++) {
+            if (i % 20 == 0) cart = new Cart(promos);
+            String k = hotOnly && i % 2 == 0 ? keys[0] : keys[rnd.nextInt(keys.length)];
+            long t0 = System.nanoTime();
+            cart.add(k, k, 1000_00, 1);
+            ns[i] = System.nanoTime() - t0;
+        }
+        Arrays.sort(ns);
+        long sum = 0;
+        for (long n : ns) sum += n;
+        System.out.printf("%-7s rules=%d  avg=%.2fus  p50=%.2fus  p99=%.2fus%n", label, promos.size(),
+                sum / (double) ops / 1e3, ns[ops / 2] / 1e3, ns[(int) (ops * 0.99)] / 1e3);
+    }
+}
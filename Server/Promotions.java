@@ -0,0 +1,225 @@
+// Promotions.java
+import java.util.*;
+
+// Promotion rules resolved once, at load time, into at most one decision per product:
+//  - a product keeps its best PERCENT and its best BUY_X_GET_Y; a line gets whichever
+//    saves more, never both
+//  - overlapping bundles are reduced to a disjoint set (largest saving first), and units
+//    priced as part of a bundle set get no line deal on top
+// A cart change therefore re-evaluates one product, or the one bundle it belongs to,
+// however many rules were loaded.
+public class Promotions {
+
+    // parsed rule, before resolution
+    abstract static class Rule {
+        final String[] keys; // lowercase product keys this rule depends on
+        Rule(String... keys) { this.keys = keys; }
+    }
+
+    // PERCENT,name,pct -> pct% off every unit of the product
+    static class PercentOff extends Rule {
+        final int percent;
+        PercentOff(String key, int percent) { super(key); this.percent = percent; }
+    }
+
+    // BUY_X_GET_Y,name,x,y -> every x+y units, y of them are free
+    static class BuyXGetY extends Rule {
+        final int buy, free;
+        BuyXGetY(String key, int buy, int free) { super(key); this.buy = buy; this.free = free; }
+    }
+
+    // BUNDLE,a+b+...,price -> each complete set of the listed products costs price
+    static class Bundle extends Rule {
+        final long bundleMinor;
+        Bundle(String[] keys, long bundleMinor) { super(keys); this.bundleMinor = bundleMinor; }
+    }
+
+    // resolved line deal for one product (0 = none)
+    static final class Deal {
+        int percent;
+        int buy, free;
+    }
+
+    // products priced together: a single product, or the products of one bundle
+    static final class Group {
+        final String[] keys;
+        final long bundleMinor; // -1 for a single product
+        Group(String[] keys, long bundleMinor) { this.keys = keys; this.bundleMinor = bundleMinor; }
+    }
+
+    private final Map<String, Deal> deals;
+    private final Map<String, Integer> groupOf;
+    private final Group[] groups;
+    private final int ruleCount;
+
+    private Promotions(Map<String, Deal> deals, Map<String, Integer> groupOf, Group[] groups, int ruleCount) {
+        this.deals = deals;
+        this.groupOf = groupOf;
+        this.groups = groups;
+        this.ruleCount = ruleCount;
+    }
+
+    // prices: unit price in minor units per product key, used to rank bundles
+    public static Promotions compile(List<Rule> list, Map<String, Long> prices) {
+        Map<String, Deal> deals = new HashMap<>();
+        Map<String, Bundle> bundles = new HashMap<>(); // sorted key set -> cheapest bundle
+        for (Rule r : list) {
+            if (r instanceof PercentOff) {
+                PercentOff p = (PercentOff) r;
+                Deal d = deals.computeIfAbsent(p.keys[0], k -> new Deal());
+                d.percent = Math.max(d.percent, p.percent);
+            } else if (r instanceof BuyXGetY) {
+                BuyXGetY b = (BuyXGetY) r;
+                Deal d = deals.computeIfAbsent(b.keys[0], k -> new Deal());
+                // keep the highest free share; on a tie the smaller set triggers sooner
+                long mine = (long) b.free * (d.buy + d.free);
+                long theirs = (long) d.free * (b.buy + b.free);
+                if (d.free == 0 || mine > theirs || (mine == theirs && b.buy + b.free < d.buy + d.free)) {
+                    d.buy = b.buy;
+                    d.free = b.free;
+                }
+            } else if (r instanceof Bundle) {
+                Bundle b = (Bundle) r;
+                String[] sorted = b.keys.clone();
+                Arrays.sort(sorted);
+                bundles.merge(String.join("+", sorted), b, (x, y) -> x.bundleMinor <= y.bundleMinor ? x : y);
+            }
+        }
+
+        // disjoint bundles, biggest saving per set first
+        List<Bundle> candidates = new ArrayList<>();
+        for (Bundle b : bundles.values()) {
+            if (saving(b, prices) > 0) candidates.add(b);
+        }
+        candidates.sort((x, y) -> Long.compare(saving(y, prices), saving(x, prices)));
+        List<Group> groups = new ArrayList<>();
+        Map<String, Integer> groupOf = new HashMap<>();
+        for (Bundle b : candidates) {
+            boolean free = true;
+            for (String k : b.keys) free &= !groupOf.containsKey(k);
+            if (!free) continue;
+            for (String k : b.keys) groupOf.put(k, groups.size());
+            groups.add(new Group(b.keys, b.bundleMinor));
+        }
+        for (String k : deals.keySet()) {
+            if (groupOf.containsKey(k)) continue;
+            groupOf.put(k, groups.size());
+            groups.add(new Group(new String[] { k }, -1));
+        }
+        return new Promotions(deals, groupOf, groups.toArray(new Group[0]), list.size());
+    }
+
+    public static Promotions none() {
+        return compile(Collections.emptyList(), Collections.emptyMap());
+    }
+
+    private static long saving(Bundle b, Map<String, Long> prices) {
+        long list = 0;
+        for (String k : b.keys) {
+            Long p = prices.get(k);
+            if (p == null) return 0;
+            list += p;
+        }
+        return list - b.bundleMinor;
+    }
+
+    // group to re-evaluate when this product changes, or -1 if no promotion touches it
+    public int groupFor(String key) { return groupOf.getOrDefault(key, -1); }
+
+    // total discount for one group, never more than the group's subtotal
+    public long evaluate(int group, Cart cart) {
+        Group g = groups[group];
+        int sets = bundleSets(g, cart);
+        long d = 0;
+        if (sets > 0) {
+            long list = 0;
+            for (String k : g.keys) list += cart.unitPrice(k);
+            d += Math.max(0, list - g.bundleMinor) * sets;
+        }
+        for (String k : g.keys) d += lineDiscount(k, cart.qty(k) - sets, cart.unitPrice(k));
+        return d;
+    }
+
+    // what evaluate() applied, for the CART| summary
+    public String describe(int group, Cart cart) {
+        Group g = groups[group];
+        int sets = bundleSets(g, cart);
+        List<String> parts = new ArrayList<>();
+        if (sets > 0) parts.add("Bundle " + String.join("+", g.keys) + " x" + sets);
+        for (String k : g.keys) {
+            Deal d = deals.get(k);
+            int qty = cart.qty(k) - sets;
+            if (d == null || qty <= 0) continue;
+            long unit = cart.unitPrice(k);
+            if (freeUnits(d, qty) * unit > unit * qty * d.percent / 100) {
+                parts.add("Buy " + d.buy + " get " + d.free + " " + k);
+            } else if (d.percent > 0) {
+                parts.add(d.percent + "% off " + k);
+            }
+        }
+        return String.join(" + ", parts);
+    }
+
+    // rules read from promotions.txt, before resolution
+    public int size() { return ruleCount; }
+
+    private static int bundleSets(Group g, Cart cart) {
+        if (g.bundleMinor < 0) return 0;
+        int sets = Integer.MAX_VALUE;
+        for (String k : g.keys) sets = Math.min(sets, cart.qty(k));
+        return sets;
+    }
+
+    // best single deal for qty units, capped at the line's own subtotal
+    private long lineDiscount(String key, int qty, long unit) {
+        Deal d = deals.get(key);
+        if (d == null || qty <= 0) return 0;
+        long line = unit * qty;
+        long best = Math.max(line * d.percent / 100, freeUnits(d, qty) * unit);
+        return Math.min(best, line);
+    }
+
+    private static long freeUnits(Deal d, int qty) {
+        return d.free == 0 ? 0 : (long) (qty / (d.buy + d.free)) * d.free;
+    }
+
+    // parse one line of promotions.txt; returns null for blanks and comments.
+    // Bad values are rejected here so a rule can never throw inside Cart.add.
+    static Rule parse(String line, Set<String> known) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) return null;
+        String[] p = line.split(",");
+        String type = p[0].trim().toUpperCase();
+        switch (type) {
+            case "PERCENT": {
+                int pct = Integer.parseInt(p[2].trim());
+                if (pct < 1 || pct > 100) throw new IllegalArgumentException("percent must be 1..100");
+                return new PercentOff(product(p[1], known), pct);
+            }
+            case "BUY_X_GET_Y": {
+                int buy = Integer.parseInt(p[2].trim());
+                int free = Integer.parseInt(p[3].trim());
+                if (buy < 1 || free < 1) throw new IllegalArgumentException("buy and free must be >= 1");
+                return new BuyXGetY(product(p[1], known), buy, free);
+            }
+            case "BUNDLE": {
+                String[] keys = p[1].split("\\+");
+                for (int i = 0; i < keys.length; i++) keys[i] = product(keys[i], known);
+                if (new HashSet<>(Arrays.asList(keys)).size() != keys.length) {
+                    throw new IllegalArgumentException("bundle products must be distinct");
+                }
+                long price = Cart.toMinor(p[2]);
+                if (price < 0) throw new IllegalArgumentException("bundle price must be >= 0");
+                return new Bundle(keys, price);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown promotion type: " + p[0]);
+        }
+    }
+
+    private static String product(String name, Set<String> known) {
+        String key = name.trim().toLowerCase();
+        if (!known.contains(key)) throw new IllegalArgumentException("unknown product " + name.trim());
+        return key;
+    }
+}
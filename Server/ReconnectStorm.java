@@ -0,0 +1,126 @@
+// ReconnectStorm.java
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Load tool: simulates a network blip that drops every client at once and
+// measures what reconnecting costs with RESUME versus a fresh HELLO + cart rebuild.
+// One unmeasured warm-up round runs first, then the two strategies alternate
+// which goes first so neither always pays for a colder JIT.
+// Usage (server must be running): java ReconnectStorm [clients] [host] [port] [rounds]
+public class ReconnectStorm {
+
+    static class Result {
+        final long nanos;
+        final long bytes;
+        Result(long n, long b) { nanos = n; bytes = b; }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        String host = args.length > 1 ? args[1] : "127.0.0.1";
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+
+        // 1. everyone connects and puts something in the cart
+        String[] tokens = new String[clients];
+        long[] versions = new long[clients];
+        List<Socket> open = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Socket s = new Socket(host, port);
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+            PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+            out.println("HELLO");
+            String line;
+            while (!(line = in.readLine()).equals("END")) {
+                if (line.startsWith("SESSION|")) tokens[i] = line.split("\\|")[1];
+                if (line.startsWith("CATALOG|")) versions[i] = Long.parseLong(line.split("\\|")[1]);
+            }
+            out.println("ADD:shirt:1");
+            out.println("ADD:jeans:1");
+            open.add(s);
+        }
+        Thread.sleep(500); // let the ADDs land before the blip
+
+        // 2. the blip: every socket drops at once
+        for (Socket s : open) s.close();
+        System.out.println("Dropped " + clients + " clients");
+
+        // each storm closes its sockets again, so the same sessions can be resumed every round
+        Reconnect resume = i -> resume(host, port, tokens[i], versions[i]);
+        Reconnect fresh = i -> fresh(host, port);
+        storm(clients, resume);
+        storm(clients, fresh);
+        System.out.println("Warm-up done");
+        for (int round = 1; round <= rounds; round++) {
+            boolean resumeFirst = round % 2 == 1;
+            List<Result> a = storm(clients, resumeFirst ? resume : fresh);
+            List<Result> b = storm(clients, resumeFirst ? fresh : resume);
+            report("round " + round + " RESUME", resumeFirst ? a : b);
+            report("round " + round + " HELLO + rebuild", resumeFirst ? b : a);
+        }
+    }
+
+    interface Reconnect { Result run(int i) throws IOException; }
+
+    // all clients reconnect at the same instant
+    static List<Result> storm(int clients, Reconnect r) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(clients, 256));
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<Result>> fs = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            final int id = i;
+            fs.add(pool.submit(() -> { go.await(); return r.run(id); }));
+        }
+        go.countDown();
+        List<Result> out = new ArrayList<>();
+        for (Future<Result> f : fs) out.add(f.get());
+        pool.shutdown();
+        return out;
+    }
+
+    // RESUME and wait for the cart to be restored
+    static Result resume(String host, int port, String token, long version) throws IOException {
+        long t0 = System.nanoTime();
+        try (Socket s = new Socket(host, port)) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+            new PrintWriter(s.getOutputStream(), true).println("RESUME:" + token + ":" + version);
+            long bytes = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                bytes += line.length() + 1;
+                if (line.startsWith("RESTORE|")) break;
+            }
+            return new Result(System.nanoTime() - t0, bytes);
+        }
+    }
+
+    // old path: full catalog, then re-add the cart line by line
+    static Result fresh(String host, int port) throws IOException {
+        long t0 = System.nanoTime();
+        try (Socket s = new Socket(host, port)) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+            PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+            out.println("HELLO");
+            long bytes = 0;
+            String line;
+            while (!(line = in.readLine()).equals("END")) bytes += line.length() + 1;
+            out.println("ADD:shirt:1");
+            out.println("ADD:jeans:1");
+            int acks = 0;
+            while (acks < 2 && (line = in.readLine()) != null) {
+                bytes += line.length() + 1;
+                if (line.startsWith("OK|") || line.startsWith("ERROR|")) acks++;
+            }
+            return new Result(System.nanoTime() - t0, bytes);
+        }
+    }
+
+    static void report(String label, List<Result> rs) {
+        long[] ms = rs.stream().mapToLong(r -> r.nanos).sorted().toArray();
+        long bytes = rs.stream().mapToLong(r -> r.bytes).sum();
+        System.out.printf("%-26s clients=%d  p50=%.2fms  p99=%.2fms  max=%.2fms  bytes=%d%n", label, ms.length,
+                ms[ms.length / 2] / 1e6, ms[(int) (ms.length * 0.99)] / 1e6, ms[ms.length - 1] / 1e6, bytes);
+    }
+}
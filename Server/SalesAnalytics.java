@@ -0,0 +1,162 @@
+// SalesAnalytics.java
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Streaming sales stats fed by successful orders, in fixed memory:
+//  - top sellers via a space-saving heavy-hitters table
+//  - co-purchase counts via a count-min sketch keyed by product pair
+//  - units sold per minute in a ring of one-minute buckets
+// Orders are folded in on a single background thread; queries only read
+// published snapshots and atomic counters, so they never wait on it.
+public class SalesAnalytics {
+    private static final int TRACKED = 128;     // heavy-hitter counters kept
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 4096;
+    private static final int MINUTES = 60;      // length of the rate window ring
+    private static final int QUEUE = 1024;      // pending orders before we start dropping
+    private static final long SEED1 = 0x9E3779B97F4A7C15L; // two independent pair hashes for the sketch
+    private static final long SEED2 = 0xC2B2AE3D27D4EB4FL;
+
+    // heavy hitters (writer thread only)
+    private final Map<String, Long> counters = new HashMap<>(); // key -> estimated count
+    private volatile List<Map.Entry<String, Long>> top = Collections.emptyList();
+
+    // co-purchase count-min sketch, row-major
+    private final AtomicLongArray sketch = new AtomicLongArray(SKETCH_DEPTH * SKETCH_WIDTH);
+
+    // per-minute units: stamp[i] is the epoch minute bucket i currently holds
+    private final AtomicLongArray units = new AtomicLongArray(MINUTES);
+    private final AtomicLongArray stamp = new AtomicLongArray(MINUTES);
+
+    // bounded, drop-on-overflow: analytics must never push back on checkout
+    private final ThreadPoolExecutor worker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE), r -> {
+                Thread t = new Thread(r, "sales-analytics");
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    // queue an order (lowercase key -> qty); returns immediately
+    public void record(Map<String, Integer> order) {
+        if (order.isEmpty()) return;
+        long minute = System.currentTimeMillis() / 60_000;
+        worker.execute(() -> fold(order, minute));
+    }
+
+    public void shutdown() {
+        worker.shutdown();
+    }
+
+    // best sellers, highest first (counts may overestimate by at most the error of evicted items)
+    public List<Map.Entry<String, Long>> top(int k) {
+        List<Map.Entry<String, Long>> t = top;
+        return t.size() <= k ? t : t.subList(0, k);
+    }
+
+    // products most often bought with key, best first
+    public List<Map.Entry<String, Long>> recommend(String key, int k) {
+        List<Map.Entry<String, Long>> out = new ArrayList<>();
+        for (Map.Entry<String, Long> e : top) {
+            String other = e.getKey();
+            if (other.equals(key)) continue;
+            long c = pairCount(key, other);
+            if (c > 0) out.add(new AbstractMap.SimpleImmutableEntry<>(other, c));
+        }
+        out.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        return out.size() <= k ? out : out.subList(0, k);
+    }
+
+    // units sold over the last n minutes (n <= 60)
+    public long unitsLast(int minutes) {
+        long now = System.currentTimeMillis() / 60_000;
+        long sum = 0;
+        for (int i = 0; i < MINUTES; i++) {
+            long m = stamp.get(i);
+            if (now - m < minutes) sum += units.get(i);
+        }
+        return sum;
+    }
+
+    private void fold(Map<String, Integer> order, long minute) {
+        long sold = 0;
+        for (Map.Entry<String, Integer> e : order.entrySet()) {
+            offer(e.getKey(), e.getValue());
+            sold += e.getValue();
+        }
+        List<String> keys = new ArrayList<>(order.keySet());
+        for (int i = 0; i < keys.size(); i++) {
+            for (int j = 0; j < keys.size(); j++) {
+                if (i != j) addPair(keys.get(i), keys.get(j));
+            }
+        }
+        int slot = (int) (minute % MINUTES);
+        if (stamp.get(slot) != minute) {
+            units.set(slot, 0);
+            stamp.set(slot, minute);
+        }
+        units.addAndGet(slot, sold);
+        publishTop();
+    }
+
+    // space-saving update: evict the smallest counter when full
+    private void offer(String key, int qty) {
+        Long c = counters.get(key);
+        if (c == null && counters.size() >= TRACKED) {
+            // the newcomer inherits the evicted count, so estimates only ever overcount
+            String minKey = null;
+            long min = Long.MAX_VALUE;
+            for (Map.Entry<String, Long> e : counters.entrySet()) {
+                if (e.getValue() < min) { minKey = e.getKey(); min = e.getValue(); }
+            }
+            counters.remove(minKey);
+            c = min;
+        }
+        counters.put(key, (c == null ? 0 : c) + qty);
+    }
+
+    private void publishTop() {
+        List<Map.Entry<String, Long>> t = new ArrayList<>(counters.size());
+        for (Map.Entry<String, Long> e : counters.entrySet()) {
+            t.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue()));
+        }
+        t.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        top = Collections.unmodifiableList(t);
+    }
+
+    private void addPair(String a, String b) {
+        long h1 = hash(a, b, SEED1), h2 = hash(a, b, SEED2) | 1;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            sketch.incrementAndGet(row * SKETCH_WIDTH + bucket(h1, h2, row));
+        }
+    }
+
+    private long pairCount(String a, String b) {
+        long h1 = hash(a, b, SEED1), h2 = hash(a, b, SEED2) | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            min = Math.min(min, sketch.get(row * SKETCH_WIDTH + bucket(h1, h2, row)));
+        }
+        return min;
+    }
+
+    // row i uses h1 + i*h2 (Kirsch-Mitzenmacher), so rows differ even when h1 collides
+    private static int bucket(long h1, long h2, int row) {
+        return (int) Long.remainderUnsigned(h1 + row * h2, SKETCH_WIDTH);
+    }
+
+    // seeded 64-bit hash of the ordered pair (a, b), read straight from the chars
+    private static long hash(String a, String b, long seed) {
+        long h = seed;
+        for (int i = 0; i < a.length(); i++) h = (h ^ a.charAt(i)) * 0x100000001B3L;
+        h = (h ^ 0xFFFF) * 0x100000001B3L; // separator, so ("ab","c") != ("a","bc")
+        for (int i = 0; i < b.length(); i++) h = (h ^ b.charAt(i)) * 0x100000001B3L;
+        // murmur3 finalizer to spread the FNV state over all 64 bits
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -5,11 +5,15 @@ import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.locks.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 public class Server {
     private static final int PORT = 5000;
+    // accept queue deep enough for a reconnect storm (default is 50, overflow costs a 1s SYN retry)
+    private static final int BACKLOG = 1024;
     private static final String PRODUCTS_PATH = "../Data/products.txt";
+    private static final String PROMOTIONS_PATH = "../Data/promotions.txt";
 
     // products map keyed by lowercase name
     private static final Map<String, Product> products = new ConcurrentHashMap<>();
@@ -19,10 +23,26 @@ public class Server {
     private static final ExecutorService clientPool = Executors.newCachedThreadPool();
     private static final ExecutorService paymentPool = Executors.newFixedThreadPool(4);
     private static final AtomicInteger orderCounter = new AtomicInteger(1000);
+    // compiled promotion rules shared by every cart
+    private static volatile Promotions promotions = Promotions.none();
+    // bestseller / co-purchase stats, fed off the checkout path
+    private static final SalesAnalytics analytics = new SalesAnalytics();
+    // carts survive reconnects for this long after the last socket drops
+    private static final long SESSION_TTL_MS = 30 * 60 * 1000;
+    // upper bound on stored sessions; the oldest idle one is evicted beyond this
+    private static final int MAX_SESSIONS = 10_000;
+    private static final SessionStore sessions = new SessionStore(SESSION_TTL_MS, MAX_SESSIONS, Server::buildCart);
+    // bumped on every stock change; clients holding the current version skip the catalog on RESUME
+    private static final AtomicLong catalogVersion = new AtomicLong(1);
+    // pre-rendered PRODUCT lines, shared by every (re)connect
+    private static volatile Catalog catalogCache;
+    // milliseconds to wait for HELLO/RESUME before treating the client as an old server-first one
+    private static final int HANDSHAKE_TIMEOUT_MS = 1500;
 
     public static void main(String[] args) {
         loadProducts();
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
+        loadPromotions();
+        try (ServerSocket serverSocket = new ServerSocket(PORT, BACKLOG)) {
             System.out.println("✅ Products loaded successfully!");
             System.out.println("✅ Server started on port " + PORT);
             while (true) {
@@ -34,6 +54,8 @@ public class Server {
         } finally {
             clientPool.shutdown();
             paymentPool.shutdown();
+            analytics.shutdown();
+            sessions.shutdown();
         }
     }
 
@@ -48,13 +70,17 @@ public class Server {
             while ((line = br.readLine()) != null) {
                 String[] p = line.split(",", 4);
                 if (p.length >= 4) {
-                    String name = p[0].trim();
-                    double price = Double.parseDouble(p[1].trim());
-                    int stock = Integer.parseInt(p[2].trim());
-                    String desc = p[3].trim();
-                    Product prod = new Product(name, price, stock, desc);
-                    products.put(name.toLowerCase(), prod);
-                    locks.put(name.toLowerCase(), new ReentrantLock());
+                    try {
+                        String name = p[0].trim();
+                        long price = Cart.toMinor(p[1]);
+                        int stock = Integer.parseInt(p[2].trim());
+                        String desc = p[3].trim();
+                        Product prod = new Product(name, price, stock, desc);
+                        products.put(name.toLowerCase(), prod);
+                        locks.put(name.toLowerCase(), new ReentrantLock());
+                    } catch (RuntimeException ex) {
+                        System.out.println("❌ Skipping product '" + line + "': " + ex.getMessage());
+                    }
                 }
             }
         } catch (IOException ex) {
@@ -62,24 +88,85 @@ public class Server {
         }
     }
 
+    private static void loadPromotions() {
+        File f = new File(PROMOTIONS_PATH);
+        if (!f.exists()) return; // promotions are optional
+        List<Promotions.Rule> rules = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                try {
+                    Promotions.Rule r = Promotions.parse(line, products.keySet());
+                    if (r != null) rules.add(r);
+                } catch (RuntimeException ex) {
+                    System.out.println("❌ Skipping promotion '" + line + "': " + ex.getMessage());
+                }
+            }
+        } catch (IOException ex) {
+            System.out.println("❌ Failed to load promotions: " + ex.getMessage());
+        }
+        Map<String, Long> prices = new HashMap<>();
+        for (Map.Entry<String, Product> e : products.entrySet()) prices.put(e.getKey(), e.getValue().price);
+        promotions = Promotions.compile(rules, prices);
+        System.out.println("✅ " + promotions.size() + " promotions loaded");
+    }
+
     // save products back to file (synchronized)
     private static synchronized void saveProducts() {
         try (PrintWriter pw = new PrintWriter(new FileWriter(PRODUCTS_PATH, false))) {
             for (Product p : products.values()) {
-                pw.printf("%s,%.2f,%d,%s%n", p.name, p.price, p.stock, p.description);
+                pw.printf("%s,%s,%d,%s%n", p.name, Cart.format(p.price), p.stock, p.description);
             }
         } catch (IOException e) {
             System.err.println("Failed to save products: " + e.getMessage());
         }
+        catalogVersion.incrementAndGet();
+    }
+
+    // priced cart from key -> qty, used for new sessions and to rebuild parked ones
+    private static Cart buildCart(Map<String, Integer> items) {
+        Cart c = new Cart(promotions);
+        for (Map.Entry<String, Integer> e : items.entrySet()) {
+            Product p = products.get(e.getKey());
+            if (p != null) c.add(e.getKey(), p.name, p.price, e.getValue());
+        }
+        return c;
+    }
+
+    // PRODUCT lines rendered for one catalog version; published as a single immutable pair
+    static final class Catalog {
+        final long version;
+        final String text;
+        Catalog(long version, String text) { this.version = version; this.text = text; }
+    }
+
+    // current catalog, rendered once per version
+    private static Catalog catalog() {
+        long v = catalogVersion.get();
+        Catalog c = catalogCache;
+        if (c != null && c.version == v) return c;
+        synchronized (Server.class) {
+            c = catalogCache;
+            if (c != null && c.version == v) return c;
+            StringBuilder sb = new StringBuilder();
+            for (Product p : products.values()) {
+                sb.append("PRODUCT|").append(p.name).append('|').append(Cart.format(p.price)).append('|')
+                  .append(p.stock).append('|').append(p.description).append('\n');
+            }
+            // stock read after v was taken can only be newer, never older, than version v
+            c = new Catalog(v, sb.toString());
+            catalogCache = c;
+            return c;
+        }
     }
 
     // Product class
     static class Product {
         final String name;
-        final double price;
+        final long price; // minor units
         int stock;
         final String description;
-        Product(String n, double pr, int s, String d) {
+        Product(String n, long pr, int s, String d) {
             name = n; price = pr; stock = s; description = d;
         }
     }
@@ -89,8 +176,9 @@ public class Server {
         private final Socket socket;
         private final PrintWriter out;
         private final BufferedReader in;
-        // simple per-client cart: name->qty
-        private final Map<String,Integer> cart = new HashMap<>();
+        // session (and its cart) is picked in the handshake
+        private SessionStore.Session session;
+        private Cart cart;
 
         ClientHandler(Socket s) throws IOException {
             this.socket = s;
@@ -102,57 +190,156 @@ public class Server {
             String clientAddr = socket.getInetAddress().toString() + ":" + socket.getPort();
             System.out.println("Client connected: " + clientAddr);
             try {
-                // send initial product list (protocol: PRODUCTS lines then END)
-                for (Product p : products.values()) {
-                    out.println("PRODUCT|" + p.name + "|" + p.price + "|" + p.stock + "|" + p.description);
+                // handshake: client opens with HELLO or RESUME:token:catalogVersion.
+                // Old clients wait for the catalog before sending anything, so a
+                // silent client is served as if it had sent HELLO.
+                String line;
+                socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+                try {
+                    line = in.readLine();
+                    if (line == null) return;
+                } catch (SocketTimeoutException e) {
+                    line = "HELLO";
                 }
-                out.println("END"); // end of product list
+                socket.setSoTimeout(0);
+                String pending = handshake(line.trim());
 
-                out.println("INFO|Send commands: ADD:name:qty  VIEW_CART  CHECKOUT  EXIT");
+                out.println("INFO|Send commands: ADD:name:qty  RESTORE:name:qty,...  VIEW_CART  CLEAR  CHECKOUT  TOP  RECOMMEND:name  EXIT");
 
-                String line;
-                while ((line = in.readLine()) != null) {
-                    line = line.trim();
-                    if (line.isEmpty()) continue;
-                    if (line.equalsIgnoreCase("VIEW_CART")) {
-                        sendCart();
-                    } else if (line.startsWith("ADD:")) {
-                        handleAdd(line);
-                    } else if (line.equalsIgnoreCase("CHECKOUT")) {
-                        handleCheckout();
-                    } else if (line.equalsIgnoreCase("EXIT")) {
-                        out.println("INFO|Goodbye");
-                        break;
-                    } else {
-                        out.println("ERROR|Unknown command");
-                    }
+                // old clients start straight with a command instead of HELLO
+                boolean open = pending == null || dispatch(pending);
+                while (open && (line = in.readLine()) != null) {
+                    if (!dispatch(line)) break;
                 }
             } catch (IOException e) {
                 System.out.println("Client disconnected: " + clientAddr);
             } finally {
+                if (session != null) {
+                    session.unbind(out);
+                    sessions.detach(session);
+                }
                 try { socket.close(); } catch (IOException ignored) {}
             }
         }
 
+        // attach a session and send SESSION, catalog and (on resume) RESTORE and un-ACKed payment results.
+        // Returns the first line back if it was a plain command rather than a handshake.
+        private String handshake(String first) {
+            long clientVersion = -1;
+            if (first.startsWith("RESUME:")) {
+                String[] parts = first.split(":", 3);
+                session = sessions.resume(parts[1].trim());
+                if (parts.length == 3) {
+                    try { clientVersion = Long.parseLong(parts[2].trim()); } catch (NumberFormatException ignored) {}
+                }
+            }
+            boolean resumed = session != null;
+            if (!resumed) session = sessions.create();
+            cart = session.cart();
+            out.println("SESSION|" + session.token + "|" + (resumed ? "RESUMED" : "NEW"));
+
+            // protocol: CATALOG|version[|CURRENT], PRODUCT lines, END
+            Catalog c = catalog();
+            if (resumed && clientVersion == c.version) {
+                out.println("CATALOG|" + c.version + "|CURRENT");
+            } else {
+                out.println("CATALOG|" + c.version);
+                out.print(c.text);
+            }
+            out.println("END"); // end of product list
+
+            // a resumed client always learns what the server cart holds, even when it is empty
+            if (resumed) out.println(restoreLine(cart));
+            // payment results go to this connection from now on; replay the ones the
+            // client has not ACKed, since the dropped socket may never have delivered them
+            for (String outcome : session.bind(out)) out.println(outcome);
+
+            boolean hello = first.equalsIgnoreCase("HELLO") || first.startsWith("RESUME:");
+            return hello ? null : first;
+        }
+
+        // format: RESTORE|key:qty,key:qty  (empty after the | when the cart is empty)
+        private static String restoreLine(Cart cart) {
+            StringBuilder sb = new StringBuilder("RESTORE|");
+            for (Map.Entry<String,Integer> e : cart.snapshot().entrySet()) {
+                if (sb.length() > 8) sb.append(',');
+                sb.append(e.getKey()).append(':').append(e.getValue());
+            }
+            return sb.toString();
+        }
+
+        // handle one command line; false means the client asked to leave
+        private boolean dispatch(String line) {
+            line = line.trim();
+            if (line.isEmpty()) return true;
+            if (line.equalsIgnoreCase("VIEW_CART")) {
+                sendCart();
+            } else if (line.startsWith("ADD:")) {
+                handleAdd(line, false);
+            } else if (line.startsWith("RESTORE:")) {
+                // batch add (RESTORE:key:qty,key:qty) without per-line OK acks, answered by one RESTORE| line
+                for (String item : line.substring(8).split(",")) {
+                    if (!item.isEmpty()) handleAdd("ADD:" + item, true);
+                }
+                out.println(restoreLine(cart));
+            } else if (line.equalsIgnoreCase("TOP")) {
+                sendTop();
+            } else if (line.regionMatches(true, 0, "RECOMMEND:", 0, 10)) {
+                sendRecommend(line.substring(10));
+            } else if (line.startsWith("ACK:")) {
+                // client has shown this payment result; stop replaying it
+                try { session.ack(Integer.parseInt(line.substring(4).trim())); } catch (NumberFormatException ignored) {}
+            } else if (line.equalsIgnoreCase("CLEAR")) {
+                cart.clear();
+                out.println("INFO|Cart cleared");
+            } else if (line.equalsIgnoreCase("CHECKOUT")) {
+                handleCheckout();
+            } else if (line.equalsIgnoreCase("EXIT")) {
+                out.println("INFO|Goodbye");
+                return false;
+            } else {
+                out.println("ERROR|Unknown command");
+            }
+            return true;
+        }
+
         private void sendCart() {
-            if (cart.isEmpty()) {
-                out.println("CART|EMPTY");
+            out.println(cart.summary());
+        }
+
+        // format: TOP|5MIN:units|60MIN:units|name:count|...
+        private void sendTop() {
+            StringBuilder sb = new StringBuilder("TOP|5MIN:").append(analytics.unitsLast(5))
+                    .append("|60MIN:").append(analytics.unitsLast(60));
+            for (Map.Entry<String,Long> e : analytics.top(10)) {
+                sb.append('|').append(displayName(e.getKey())).append(':').append(e.getValue());
+            }
+            out.println(sb);
+        }
+
+        // format: RECOMMEND|name|other:count|...  (or |NONE)
+        private void sendRecommend(String arg) {
+            String name = arg.trim().toLowerCase();
+            Product p = products.get(name);
+            if (p == null) {
+                out.println("ERROR|Product not found: " + arg);
                 return;
             }
-            StringBuilder sb = new StringBuilder();
-            double total = 0;
-            for (Map.Entry<String,Integer> e : cart.entrySet()) {
-                Product p = products.get(e.getKey());
-                if (p != null) {
-                    int qty = e.getValue();
-                    sb.append(p.name).append(" x").append(qty).append(" | ");
-                    total += p.price * qty;
-                }
+            List<Map.Entry<String,Long>> recs = analytics.recommend(name, 3);
+            StringBuilder sb = new StringBuilder("RECOMMEND|").append(p.name);
+            if (recs.isEmpty()) sb.append("|NONE");
+            for (Map.Entry<String,Long> e : recs) {
+                sb.append('|').append(displayName(e.getKey())).append(':').append(e.getValue());
             }
-            out.println("CART|" + sb.toString() + "TOTAL:" + total);
+            out.println(sb);
         }
 
-        private void handleAdd(String cmd) {
+        private static String displayName(String key) {
+            Product p = products.get(key);
+            return p != null ? p.name : key;
+        }
+
+        private void handleAdd(String cmd, boolean quiet) {
             // format: ADD:name:qty
             try {
                 String[] parts = cmd.split(":", 3);
@@ -174,8 +361,8 @@ public class Server {
                 lock.lock();
                 try {
                     if (p.stock >= qty) {
-                        cart.put(name, cart.getOrDefault(name,0) + qty);
-                        out.println("OK|Added " + qty + " x " + p.name + " to cart");
+                        cart.add(name, p.name, p.price, qty);
+                        if (!quiet) out.println("OK|Added " + qty + " x " + p.name + " to cart");
                     } else {
                         out.println("ERROR|Only " + p.stock + " left for " + p.name);
                     }
@@ -193,8 +380,11 @@ public class Server {
                 return;
             }
 
+            // freeze the order now: ADDs that arrive while payment runs are not part of it
+            Map<String,Integer> order = cart.snapshot();
+
             // Attempt to reserve stock for all items atomically using per-product locks sorted order
-            List<String> names = new ArrayList<>(cart.keySet());
+            List<String> names = new ArrayList<>(order.keySet());
             // sort to prevent deadlocks (canonical lock order)
             Collections.sort(names);
 
@@ -206,7 +396,7 @@ public class Server {
                     lk.lock();
                     acquired.add(lk);
                     Product p = products.get(name);
-                    int want = cart.get(name);
+                    int want = order.get(name);
                     if (p.stock < want) {
                         out.println("ERROR|Insufficient stock for " + p.name + ". Available: " + p.stock);
                         // release locks and return
@@ -217,7 +407,7 @@ public class Server {
                 // reserve (decrement now) — will restore if payment fails
                 for (String name : names) {
                     Product p = products.get(name);
-                    int want = cart.get(name);
+                    int want = order.get(name);
                     p.stock -= want;
                 }
                 // persist current stock to file (optional)
@@ -233,10 +423,15 @@ public class Server {
                     boolean success = simulatePayment();
                     if (success) {
                         // on success, commit already reserved stock; create order record (not persisted beyond console here)
-                        out.println("PAYMENT|SUCCESS|" + orderId);
+                        // take only what was bought off the cart; items added during payment stay
+                        String remaining = session.withCart(c -> {
+                            c.remove(order);
+                            return restoreLine(c);
+                        });
+                        session.outcome(orderId, "PAYMENT|SUCCESS|" + orderId);
+                        session.send(remaining);
                         System.out.println("Order " + orderId + " SUCCESS");
-                        // empty the cart
-                        cart.clear();
+                        analytics.record(order);
                     } else {
                         // payment failed -> restore stock
                         // restore using locks (acquire same locks again)
@@ -246,13 +441,13 @@ public class Server {
                             lk.lock();
                             try {
                                 Product p = products.get(nm);
-                                p.stock += cart.get(nm); // add back reserved qty
+                                p.stock += order.get(nm); // add back reserved qty
                             } finally {
                                 lk.unlock();
                             }
                         }
                         saveProducts();
-                        out.println("PAYMENT|FAILED|" + orderId);
+                        session.outcome(orderId, "PAYMENT|FAILED|" + orderId);
                         System.out.println("Order " + orderId + " FAILED - stock restored");
                     }
                 });
@@ -0,0 +1,164 @@
+// SessionStore.java
+import java.io.PrintWriter;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Server-side carts keyed by session token, so a cart survives a dropped
+// socket and can be picked up again with RESUME:token. While no connection
+// is attached a session only keeps its cart as parallel key/qty arrays; the
+// Cart (and its promotion state) is rebuilt on resume. Idle sessions expire
+// after the TTL, and the store never holds more than maxSessions: the oldest
+// idle session is evicted to make room.
+public class SessionStore {
+    private static final int MAX_PENDING = 16; // unacknowledged payment results kept per session
+
+    static class Session {
+        final String token;
+        // connections currently using this session (a resume may overlap a half-dead socket)
+        final AtomicInteger attached = new AtomicInteger();
+        volatile long lastSeen = System.currentTimeMillis();
+        private final Function<Map<String, Integer>, Cart> cartFactory;
+        // live cart while attached, compact form while detached
+        private Cart cart;
+        private String[] parkedKeys;
+        private int[] parkedQty;
+        // connection that currently receives async messages (payment results)
+        private PrintWriter out;
+        // PAYMENT|SUCCESS/FAILED lines not yet ACKed, by order id; replayed on RESUME
+        private final Map<Integer, String> pending = new LinkedHashMap<>();
+
+        Session(String token, Function<Map<String, Integer>, Cart> cartFactory) {
+            this.token = token;
+            this.cartFactory = cartFactory;
+            this.cart = cartFactory.apply(Collections.emptyMap());
+        }
+
+        // live cart, rebuilt from the compact form if the session was parked
+        synchronized Cart cart() {
+            if (cart == null) {
+                Map<String, Integer> items = new LinkedHashMap<>();
+                for (int i = 0; i < parkedKeys.length; i++) items.put(parkedKeys[i], parkedQty[i]);
+                cart = cartFactory.apply(items);
+                parkedKeys = null;
+                parkedQty = null;
+            }
+            return cart;
+        }
+
+        // run op against the cart even if nobody is attached, then park again
+        synchronized <T> T withCart(Function<Cart, T> op) {
+            T result = op.apply(cart());
+            park();
+            return result;
+        }
+
+        // drop the live Cart down to key/qty arrays once no connection uses it
+        synchronized void park() {
+            if (cart == null || attached.get() > 0) return;
+            Map<String, Integer> items = cart.snapshot();
+            parkedKeys = items.keySet().toArray(new String[0]);
+            parkedQty = new int[parkedKeys.length];
+            for (int i = 0; i < parkedKeys.length; i++) parkedQty[i] = items.get(parkedKeys[i]);
+            cart = null;
+        }
+
+        // route async messages to w from now on; returns the unacknowledged results to replay
+        synchronized List<String> bind(PrintWriter w) {
+            out = w;
+            return new ArrayList<>(pending.values());
+        }
+
+        synchronized void unbind(PrintWriter w) {
+            if (out == w) out = null;
+        }
+
+        // deliver a payment result to whichever connection holds the session now,
+        // and keep it until the client ACKs it
+        synchronized void outcome(int orderId, String msg) {
+            pending.put(orderId, msg);
+            if (pending.size() > MAX_PENDING) pending.remove(pending.keySet().iterator().next());
+            send(msg);
+        }
+
+        synchronized void ack(int orderId) {
+            pending.remove(orderId);
+        }
+
+        synchronized void send(String msg) {
+            if (out != null) out.println(msg);
+        }
+    }
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final long ttlMillis;
+    private final int maxSessions;
+    private final Function<Map<String, Integer>, Cart> cartFactory;
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "session-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // cartFactory builds a priced Cart from key -> qty (empty for a new session)
+    public SessionStore(long ttlMillis, int maxSessions, Function<Map<String, Integer>, Cart> cartFactory) {
+        this.ttlMillis = ttlMillis;
+        this.maxSessions = maxSessions;
+        this.cartFactory = cartFactory;
+        long period = Math.max(1000, Math.min(60_000, ttlMillis / 4));
+        sweeper.scheduleAtFixedRate(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // new session with an empty cart, already attached
+    public Session create() {
+        if (sessions.size() >= maxSessions) evictOldestIdle();
+        byte[] b = new byte[16];
+        random.nextBytes(b);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(b);
+        Session s = new Session(token, cartFactory);
+        s.attached.incrementAndGet();
+        sessions.put(token, s);
+        return s;
+    }
+
+    // attach to an existing session, or null if unknown / expired
+    public Session resume(String token) {
+        // computeIfPresent keeps this atomic with the sweeper's removal
+        return sessions.computeIfPresent(token, (k, s) -> {
+            s.attached.incrementAndGet();
+            s.lastSeen = System.currentTimeMillis();
+            return s;
+        });
+    }
+
+    public void detach(Session s) {
+        s.lastSeen = System.currentTimeMillis();
+        if (s.attached.decrementAndGet() <= 0) s.park();
+    }
+
+    public int size() { return sessions.size(); }
+
+    public void shutdown() {
+        sweeper.shutdown();
+    }
+
+    private void sweep() {
+        long cutoff = System.currentTimeMillis() - ttlMillis;
+        for (String token : sessions.keySet()) {
+            sessions.computeIfPresent(token, (k, s) -> s.attached.get() <= 0 && s.lastSeen < cutoff ? null : s);
+        }
+    }
+
+    // make room for a new session; attached sessions are never evicted
+    private void evictOldestIdle() {
+        String oldest = null;
+        long seen = Long.MAX_VALUE;
+        for (Session s : sessions.values()) {
+            if (s.attached.get() <= 0 && s.lastSeen < seen) { oldest = s.token; seen = s.lastSeen; }
+        }
+        if (oldest != null) sessions.computeIfPresent(oldest, (k, s) -> s.attached.get() <= 0 ? null : s);
+    }
+}